@@ -1,14 +1,42 @@
 package mods.thecomputerizer.javanet;
 
+import mods.thecomputerizer.javanet.interop.DL4JBridge;
 import mods.thecomputerizer.javanet.neuralnet.NeuralNet;
+import mods.thecomputerizer.javanet.parallel.ParameterClient;
+import mods.thecomputerizer.javanet.parallel.ParameterServer;
+import mods.thecomputerizer.javanet.parallel.ParameterWorker;
+import mods.thecomputerizer.javanet.serving.HotSwapModel;
+import mods.thecomputerizer.javanet.util.Benchmark;
+import mods.thecomputerizer.javanet.util.Benchmark.Metric;
+import mods.thecomputerizer.javanet.util.Benchmark.Report;
+import mods.thecomputerizer.javanet.util.DigitSet;
+import mods.thecomputerizer.javanet.util.MNIST;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInitUniform;
 import org.deeplearning4j.nn.weights.WeightInitXavier;
+import org.nd4j.linalg.factory.Nd4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
 public class JavaNet {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet Main");
+    private static final float DISTILL_TEMPERATURE = 4f;
+    private static final float DISTILL_ALPHA = 0.7f;
+    private static final long FIXED_SEED = 12345L; //Shared by anything that needs reproducible initial values
+    private static final String BENCHMARK_REPORT = "benchmark_report";
+    private static final double BENCHMARK_THRESHOLD = 0.1d;
+    private static final double BENCHMARK_ACCURACY_TOLERANCE = 0.5d;
+    private static final int SYNC_INTERVAL = 100;
     
     public static void main(String ... args) {
         LOGGER.info("----- START MAIN -----");
@@ -18,17 +46,128 @@ public class JavaNet {
         }
         String arg = args[0];
         LOGGER.info("Beginning to take over the world! I mean do some {}",arg);
-        digitNet(!"testing".equalsIgnoreCase(arg),args.length>1 ? Integer.parseInt(args[1]) : 1);
+        if("benchmark".equalsIgnoreCase(arg)) benchmark(args);
+        else if("caching".equalsIgnoreCase(arg)) MNIST.rebuildCache();
+        else if("server".equalsIgnoreCase(arg)) parameterServer(args);
+        else if("worker".equalsIgnoreCase(arg)) parameterWorker(args);
+        else if("comparing".equalsIgnoreCase(arg)) compareDL4J(args);
+        else if("serving".equalsIgnoreCase(arg)) serve();
+        else {
+            int cycles = args.length>1 ? Integer.parseInt(args[1]) : 1;
+            if("distilling".equalsIgnoreCase(arg)) distillNet(cycles);
+            else digitNet(!"testing".equalsIgnoreCase(arg),cycles);
+        }
         LOGGER.info("----- END MAIN -----");
     }
     
-    static NeuralNet defaultNeuralNet() {
+    static NeuralNet.Builder defaultBuilder() {
         return NeuralNet.builder(784,128,128,10)
+                .setBiasInit(new WeightInitUniform())
+                .setWeightInit(new WeightInitXavier());
+    }
+    
+    static NeuralNet defaultNeuralNet() {
+        return defaultBuilder().build();
+    }
+    
+    /**
+     * Usage: benchmark [baseline report name] [regression threshold %] [accuracy tolerance in percentage points]
+     * The report is always written to benchmark_report.json and is only compared when a baseline is specified.
+     * The baseline is read before running so a bad baseline fails fast and can never be the report being written.
+     */
+    static void benchmark(String ... args) {
+        Report baseline = null;
+        if(args.length>1) {
+            if(BENCHMARK_REPORT.equals(args[1]))
+                throw new RuntimeException("Baseline can't be "+BENCHMARK_REPORT+" since the new report is "+
+                                           "written there");
+            baseline = Benchmark.read(args[1]);
+            if(Objects.isNull(baseline)) throw new RuntimeException("No baseline report found for "+args[1]);
+        }
+        double threshold = args.length>2 ? Double.parseDouble(args[2])/100d : BENCHMARK_THRESHOLD;
+        double tolerance = args.length>3 ? Double.parseDouble(args[3]) : BENCHMARK_ACCURACY_TOLERANCE;
+        Report report = Benchmark.run(defaultBuilder(),FIXED_SEED);
+        Benchmark.write(BENCHMARK_REPORT,report);
+        if(Objects.isNull(baseline)) return;
+        List<Metric> regressions = report.compare(baseline,threshold,tolerance);
+        if(!regressions.isEmpty())
+            throw new RuntimeException("Benchmark regressed by more than "+(threshold*100d)+"% (or "+tolerance+" "+
+                                       "accuracy points) in "+regressions);
+        LOGGER.info("No regressions found against baseline {}",args[1]);
+    }
+    
+    /**
+     * Narrower network trained from the default network through distillation
+     */
+    static NeuralNet studentNeuralNet() {
+        return NeuralNet.builder(784,32,10)
                 .setBiasInit(new WeightInitUniform())
                 .setWeightInit(new WeightInitXavier())
+                .setDataPath("student_data")
                 .build();
     }
     
+    static void distillNet(int cycles) {
+        LOGGER.info("Running digit recognizer distillation sequence");
+        studentNeuralNet().distill(defaultNeuralNet(),cycles,DISTILL_TEMPERATURE,DISTILL_ALPHA);
+        LOGGER.info("Finished running distillation sequence");
+    }
+    
+    /**
+     * Usage: comparing [cycles] [DL4J batch size]
+     * Trains the same seeded network through the Layer engine and through DL4J and logs throughput & accuracy of both.
+     * The DL4J parameters are imported back into a NeuralNet and tested again to check that the bridge is lossless.
+     */
+    static void compareDL4J(String ... args) {
+        int cycles = args.length>1 ? Integer.parseInt(args[1]) : 1;
+        int batchSize = args.length>2 ? Integer.parseInt(args[2]) : 1;
+        DigitSet training = MNIST.readTraining().cacheFloats();
+        DigitSet testing = MNIST.readTesting().cacheFloats();
+        Nd4j.getRandom().setSeed(FIXED_SEED);
+        NeuralNet neuralNet = defaultBuilder().setDataPath("comparison_data").build();
+        MultiLayerNetwork network = DL4JBridge.export(neuralNet);
+        long start = System.nanoTime();
+        for(int c=0;c<cycles;c++) neuralNet.train(training,c);
+        double engineSeconds = (System.nanoTime()-start)/1e9d;
+        double engineAccuracy = neuralNet.test(testing,null);
+        start = System.nanoTime();
+        for(int c=0;c<cycles;c++) DL4JBridge.fit(network,training,batchSize);
+        double dl4jSeconds = (System.nanoTime()-start)/1e9d;
+        double dl4jAccuracy = DL4JBridge.test(network,testing,batchSize);
+        DL4JBridge.importInto(network,neuralNet);
+        double importedAccuracy = neuralNet.test(testing,null);
+        double samples = (double)training.size()*cycles;
+        LOGGER.info("Layer engine: {} samples/sec, {}% accuracy",samples/engineSeconds,engineAccuracy);
+        LOGGER.info("DL4J (batch size {}): {} samples/sec, {}% accuracy ({}% after importing back)",batchSize,
+                    samples/dl4jSeconds,dl4jAccuracy,importedAccuracy);
+    }
+    
+    /**
+     * Serves the default network while publishing every new trained_data checkpoint without a restart.
+     * Reads commands from stdin: reload, rollback, test, version, quit
+     */
+    static void serve() {
+        try(HotSwapModel model = new HotSwapModel(defaultNeuralNet());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+            model.watch("trained_data");
+            String line;
+            while(Objects.nonNull(line = reader.readLine())) {
+                switch(line.trim().toLowerCase()) {
+                    case "reload" -> model.publish("trained_data");
+                    case "rollback" -> model.rollback();
+                    case "test" -> model.test(MNIST.readTesting().cacheFloats());
+                    case "version" -> LOGGER.info("Serving parameter version {}",model.getVersion());
+                    case "quit" -> {
+                        return;
+                    }
+                    default -> LOGGER.warn("Unknown command {} (reload, rollback, test, version, quit)",line);
+                }
+            }
+        } catch(IOException ex) {
+            LOGGER.error("Stopped serving",ex);
+        }
+    }
+    
     static void digitNet(boolean training, int cycles) {
         LOGGER.info("Running digit recognizer {} sequence",training ? "training" : "testing");
         NeuralNet neuralNet = defaultNeuralNet();
@@ -36,4 +175,74 @@ public class JavaNet {
         else neuralNet.test();
         LOGGER.info("Finished running {} sequence",training ? "training" : "testing");
     }
-}
\ No newline at end of file
+    
+    /**
+     * Usage: server [workers] [cycles] [port]
+     * Starts a parameter server on the loopback address and launches each worker as a separate JVM process
+     */
+    static void parameterServer(String ... args) {
+        int workers = args.length>1 ? Integer.parseInt(args[1]) : 2;
+        int cycles = args.length>2 ? Integer.parseInt(args[2]) : 1;
+        int port = args.length>3 ? Integer.parseInt(args[3]) : 0;
+        NeuralNet neuralNet = defaultNeuralNet();
+        List<Process> processes = new ArrayList<>();
+        try(ParameterServer server = new ParameterServer(neuralNet.savedTrainingData(),port,workers,workers*2)) {
+            server.start();
+            for(int i=0;i<workers;i++) processes.add(launchWorker(server.getPort(),i,workers,cycles));
+            while(!server.awaitFinished(1L,TimeUnit.SECONDS)) checkWorkers(processes,false);
+            for(Process process : processes) process.waitFor();
+            checkWorkers(processes,true);
+            neuralNet.load(server.snapshot());
+        } catch(IOException ex) {
+            throw new RuntimeException("Failed to launch worker process",ex);
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for workers",ex);
+        } finally {
+            for(Process process : processes) process.destroy();
+        }
+        neuralNet.save();
+    }
+    
+    /**
+     * Throws if any worker process failed or if every worker exited without the server finishing.
+     * Catches workers that die before they ever connect, which the server has no way of knowing about.
+     */
+    private static void checkWorkers(List<Process> processes, boolean finished) {
+        boolean alive = false;
+        for(int i=0;i<processes.size();i++) {
+            Process process = processes.get(i);
+            if(process.isAlive()) alive = true;
+            else if(process.exitValue()!=0)
+                throw new RuntimeException("Worker "+i+" exited with code "+process.exitValue());
+        }
+        if(!alive && !finished) throw new RuntimeException("Every worker exited before finishing");
+    }
+    
+    private static Process launchWorker(int port, int index, int workers, int cycles) throws IOException {
+        String java = ProcessHandle.current().info().command()
+                .orElse(System.getProperty("java.home")+File.separator+"bin"+File.separator+"java");
+        return new ProcessBuilder(java,"-cp",System.getProperty("java.class.path"),JavaNet.class.getName(),
+                                  "worker",String.valueOf(port),String.valueOf(index),String.valueOf(workers),
+                                  String.valueOf(cycles)).inheritIO().start();
+    }
+    
+    /**
+     * Usage: worker <port> <index> <workers> [cycles]
+     * Trains every workers-th digit starting at index against the parameter server on the given port
+     */
+    static void parameterWorker(String ... args) {
+        if(args.length<4) throw new RuntimeException("Worker requires a port, index, and worker count");
+        int port = Integer.parseInt(args[1]);
+        int index = Integer.parseInt(args[2]);
+        int workers = Integer.parseInt(args[3]);
+        int cycles = args.length>4 ? Integer.parseInt(args[4]) : 1;
+        NeuralNet neuralNet = defaultBuilder().setDataPath("worker_data").build();
+        try(ParameterClient client = new ParameterClient(port)) {
+            DigitSet shard = MNIST.readTraining().shard(index,workers).cacheFloats();
+            new ParameterWorker(neuralNet,client,SYNC_INTERVAL).train(shard,cycles);
+        } catch(IOException ex) {
+            throw new RuntimeException("Worker "+index+" lost connection to the parameter server",ex);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package mods.thecomputerizer.javanet.interop;
+
+import mods.thecomputerizer.javanet.layer.Layer;
+import mods.thecomputerizer.javanet.neuralnet.NeuralNet;
+import mods.thecomputerizer.javanet.util.DigitSet;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration.ListBuilder;
+import org.deeplearning4j.nn.conf.layers.DenseLayer;
+import org.deeplearning4j.nn.conf.layers.OutputLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.learning.config.Nesterovs;
+import org.nd4j.linalg.lossfunctions.LossFunctions.LossFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.deeplearning4j.nn.params.DefaultParamInitializer.BIAS_KEY;
+import static org.deeplearning4j.nn.params.DefaultParamInitializer.WEIGHT_KEY;
+import static org.nd4j.linalg.api.buffer.DataType.FLOAT;
+
+/**
+ * Maps a NeuralNet to an equivalent DL4J MultiLayerNetwork and back.
+ * Parameters are read & written through the bias and weight views of each Layer, which store [size, previous size]
+ * weights while DL4J keeps [previous size, size] weights, so the weights are transposed in both directions.
+ */
+public class DL4JBridge {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet DL4J");
+    
+    /**
+     * Builds a network with the same layer sizes, activation functions, and current parameters.
+     * Uses momentum SGD with the same learning rate & momentum as the Layer engine for a fair comparison.
+     */
+    public static MultiLayerNetwork export(NeuralNet neuralNet) {
+        Layer[] layers = neuralNet.getLayers();
+        ListBuilder builder = new NeuralNetConfiguration.Builder()
+                .dataType(FLOAT)
+                .updater(new Nesterovs(Layer.LEARNING_RATE,Layer.MOMENTUM))
+                .list();
+        for(int i=1;i<layers.length;i++) {
+            Layer layer = layers[i];
+            int previous = layer.getPrevious().getSize();
+            if(layer.isOutput())
+                builder.layer(new OutputLayer.Builder(LossFunction.MCXENT).nIn(previous).nOut(layer.getSize())
+                                      .activation(layer.getFunction()).build());
+            else builder.layer(new DenseLayer.Builder().nIn(previous).nOut(layer.getSize())
+                                       .activation(layer.getFunction()).build());
+        }
+        MultiLayerNetwork network = new MultiLayerNetwork(builder.build());
+        network.init();
+        INDArray data = neuralNet.savedTrainingData();
+        for(int i=1;i<layers.length;i++) {
+            Layer layer = layers[i];
+            int size = layer.getSize();
+            org.deeplearning4j.nn.api.Layer dl4jLayer = network.getLayer(i-1);
+            dl4jLayer.setParam(BIAS_KEY,layer.getBiasView(data).reshape(1,size));
+            dl4jLayer.setParam(WEIGHT_KEY,layer.getWeightView(data).reshape('c',size,layer.getPrevious().getSize())
+                    .transpose());
+        }
+        return network;
+    }
+    
+    /**
+     * Copies the parameters of a network created by export back into the NeuralNet
+     */
+    public static void importInto(MultiLayerNetwork network, NeuralNet neuralNet) {
+        Layer[] layers = neuralNet.getLayers();
+        if(network.getnLayers()!=layers.length-1)
+            throw new RuntimeException("Layer count mismatch! Expected "+(layers.length-1)+" DL4J layers but got "+
+                                       network.getnLayers());
+        INDArray data = Nd4j.create(FLOAT,neuralNet.getTrainingDataSize());
+        for(int i=1;i<layers.length;i++) {
+            org.deeplearning4j.nn.api.Layer dl4jLayer = network.getLayer(i-1);
+            layers[i].getBiasView(data).assign(dl4jLayer.getParam(BIAS_KEY).ravel());
+            layers[i].getWeightView(data).assign(dl4jLayer.getParam(WEIGHT_KEY).transpose().ravel('c'));
+        }
+        neuralNet.load(data);
+    }
+    
+    /**
+     * Runs a single cycle over the digits in order using contiguous batches of the given size
+     */
+    public static void fit(MultiLayerNetwork network, DigitSet digits, int batchSize) {
+        for(int start=0;start<digits.size();start+=batchSize) {
+            int[] indices = range(start,Math.min(start+batchSize,digits.size()));
+            network.fit(digits.gatherPixels(indices),digits.gatherExpected(indices));
+        }
+    }
+    
+    private static int[] range(int start, int end) {
+        int[] indices = new int[end-start];
+        for(int i=0;i<indices.length;i++) indices[i] = start+i;
+        return indices;
+    }
+    
+    /**
+     * Returns the success rate as a percentage
+     */
+    public static double test(MultiLayerNetwork network, DigitSet digits, int batchSize) {
+        int right = 0;
+        for(int start=0;start<digits.size();start+=batchSize) {
+            int[] indices = range(start,Math.min(start+batchSize,digits.size()));
+            INDArray predicted = Nd4j.argMax(network.output(digits.gatherPixels(indices),false),1);
+            for(int i=0;i<indices.length;i++)
+                if(predicted.getInt(i)==digits.getLabel(indices[i])) right++;
+        }
+        double percent = (((double)right)/((double)digits.size()))*100d;
+        LOGGER.info("Finished DL4J MNIST test with success rate of {}%",percent);
+        return percent;
+    }
+}
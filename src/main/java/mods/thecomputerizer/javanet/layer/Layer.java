@@ -16,8 +16,8 @@ import static org.nd4j.linalg.api.buffer.DataType.FLOAT;
 @Getter
 public class Layer extends AbstractTrainable {
     
-    private static final float MOMENTUM = 0.5f;
-    private static final float LEARNING_RATE = 0.001f;
+    public static final float MOMENTUM = 0.5f;
+    public static final float LEARNING_RATE = 0.001f;
     
     private final Layer previous;
     private final INDArray biases;
@@ -99,10 +99,30 @@ public class Layer extends AbstractTrainable {
         return errorsColumn.mmul(activationsRow).muli(LEARNING_RATE);
     }
     
-    protected int getTrainingIndex() {
+    /**
+     * View of the biases for this layer within flat training data
+     */
+    public INDArray getBiasView(INDArray data) {
+        long start = getTrainingIndex();
+        return subset(data,start,start+this.biases.length());
+    }
+    
+    /**
+     * Index where the biases for this layer start in flat training data. The weights immediately follow the biases.
+     */
+    public int getTrainingIndex() {
         return isInput() ? 0 : this.previous.getTrainingSize();
     }
     
+    /**
+     * View of the weights for this layer within flat training data flattened in row major [size, previous size] order.
+     * The input layer has no weights so this should only be called for other layers.
+     */
+    public INDArray getWeightView(INDArray data) {
+        long start = getTrainingIndex()+this.biases.length();
+        return subset(data,start,start+this.weights.length());
+    }
+    
     /**
      * Recursively
      */
@@ -137,35 +157,23 @@ public class Layer extends AbstractTrainable {
         this.biasUpdates.assign(0f);
         this.weightUpdates.assign(0f);
         
-        //Load values
-        loadWeights(data,loadBias(data,getTrainingIndex()));
+        loadParameters(data);
     }
     
-    private long loadBias(INDArray data, long start) {
-        long end = start+this.biases.length();
-        this.biases.assign(subset(data,start,end));
-        return end;
-    }
-    
-    private void loadWeights(INDArray data, long start) {
-        assignVectorToMatrix(this.weights,subset(data,start,start+this.weights.length()));
+    /**
+     * Loads the bias & weight values while keeping the queued update values so momentum carries over
+     */
+    public void loadParameters(INDArray data) {
+        if(isInput()) return;
+        this.biases.assign(getBiasView(data));
+        assignVectorToMatrix(this.weights,getWeightView(data));
     }
     
     @Override public void store(INDArray data) {
         if(isInput()) return;
         
         //Store values
-        storeWeights(data,storeBias(data,getTrainingIndex()));
-    }
-    
-    private long storeBias(INDArray data, long start) {
-        long end = start+this.biases.length();
-        data.put(intervalAsArray(start,end),this.biases);
-        return end;
-    }
-    
-    private void storeWeights(INDArray data, long start) {
-        INDArray flatWeights = this.weights.ravel();
-        data.put(intervalAsArray(start,start+flatWeights.length()),flatWeights);
+        getBiasView(data).assign(this.biases);
+        getWeightView(data).assign(this.weights.ravel());
     }
 }
\ No newline at end of file
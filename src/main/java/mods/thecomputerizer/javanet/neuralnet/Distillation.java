@@ -0,0 +1,61 @@
+package mods.thecomputerizer.javanet.neuralnet;
+
+import mods.thecomputerizer.javanet.util.MNIST.DigitData;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static org.nd4j.linalg.api.buffer.DataType.FLOAT;
+
+/**
+ * Knowledge distillation targets for training a smaller student network from a trained teacher network.
+ * The teacher only runs once over the whole data set and the softened outputs are cached for every cycle.
+ */
+public class Distillation {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet Distillation");
+    private static final double EPSILON = 1e-10d;
+    
+    private final float temperature;
+    private final float alpha;
+    private final INDArray softTargets;
+    
+    public Distillation(NeuralNet teacher, List<DigitData> digits, float temperature, float alpha) {
+        if(temperature<=0f) throw new RuntimeException("Distillation temperature must be positive! Got "+temperature);
+        if(alpha<0f || alpha>1f) throw new RuntimeException("Distillation alpha must be between 0 and 1! Got "+alpha);
+        this.temperature = temperature;
+        this.alpha = alpha;
+        this.softTargets = cacheSoftTargets(teacher,digits);
+    }
+    
+    private INDArray cacheSoftTargets(NeuralNet teacher, List<DigitData> digits) {
+        LOGGER.info("Caching teacher soft targets for {} digits at temperature {}",digits.size(),this.temperature);
+        INDArray targets = Nd4j.create(FLOAT,digits.size(),teacher.getOutputLayer().getSize());
+        for(int i=0;i<digits.size();i++) targets.putRow(i,soften(teacher.predict(digits.get(i).getData())));
+        return targets;
+    }
+    
+    /**
+     * Gradient of the blended loss with respect to the inputs of the student softmax.
+     * The soft term is scaled by T^2 (the 1/T from the softened softmax cancels one of them) so its magnitude stays
+     * comparable to the hard term regardless of temperature.
+     */
+    public INDArray getErrors(int index, INDArray outputs, INDArray expected) {
+        INDArray soft = this.softTargets.getRow(index).reshape(outputs.shape());
+        INDArray softErrors = soften(outputs).subi(soft).muli(this.alpha*this.temperature);
+        return outputs.sub(expected).muli(1f-this.alpha).addi(softErrors);
+    }
+    
+    /**
+     * The output layer applies softmax itself, so the logits are never exposed.
+     * Softmax is shift invariant which means softmax(log(p)/T) is the same as p^(1/T) renormalized.
+     */
+    public INDArray soften(INDArray probabilities) {
+        INDArray softened = Transforms.pow(Transforms.max(probabilities,EPSILON),1d/this.temperature);
+        return softened.divi(softened.sumNumber());
+    }
+}
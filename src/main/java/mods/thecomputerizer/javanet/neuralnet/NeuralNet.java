@@ -35,17 +35,19 @@ public class NeuralNet extends AbstractTrainable {
     }
     
     private final Layer[] layers;
+    private final String dataPath;
+    private boolean loaded; //Whether any training data has been loaded over the initial values
     
     /**
      * Initialize Layer & LayerConnection arrays
      */
-    public NeuralNet(Layer[] layers, IWeightInit biasInit, IWeightInit weightInit) {
+    public NeuralNet(Layer[] layers, IWeightInit biasInit, IWeightInit weightInit, String dataPath) {
         this.layers = layers;
+        this.dataPath = dataPath;
         for(int i=0;i<layers.length;i++) layers[i].initializeNeurons(i,biasInit,weightInit);
+        for(int i=1;i<layers.length-1;i++) layers[i].setFunction(new ActivationGELU());
         getOutputLayer().setFunction(new ActivationSoftmax());
-        this.layers[1].setFunction(new ActivationGELU());
-        this.layers[2].setFunction(new ActivationGELU());
-        load(NNIO.getTrainingData("trained_data"));
+        load(NNIO.getTrainingData(dataPath));
     }
     
     /**
@@ -55,6 +57,34 @@ public class NeuralNet extends AbstractTrainable {
         this.layers[this.layers.length-1].backPropagate(errors); //Start back propagating from the output layer
     }
     
+    /**
+     * Trains this network against the soft targets of an already trained teacher network blended with the hard labels.
+     * Temperature softens the teacher distribution and alpha is the weight given to the soft targets.
+     */
+    public void distill(NeuralNet teacher, int cycles, float temperature, float alpha) {
+        if(!teacher.isLoaded())
+            throw new RuntimeException("Teacher network has no training data! Train it before distilling");
+        LOGGER.info("Training data size is {} (teacher is {})",getTrainingDataSize(),teacher.getTrainingDataSize());
+        List<DigitData> digits = MNIST.readTraining().cacheFloats();
+        Distillation distillation = new Distillation(teacher,digits,temperature,alpha);
+        LOGGER.info("Running MNIST distillation with {} digits for {} cycles",digits.size(),cycles);
+        for(int c=0;c<cycles;c++)
+            for(int i=0;i<digits.size();i++) distill(distillation,digits.get(i),i,(digits.size()*c)+i+1);
+        LOGGER.info("Finished MNIST distillation cycle! Writing data to file");
+        save();
+    }
+    
+    private void distill(Distillation distillation, DigitData digit, int digitIndex, int index) {
+        INDArray expected = digit.getExpectedActivation();
+        INDArray outputs = forwardCost(digit.getData(),expected,true);
+        if(index%1000==0) {
+            INDArray costs = Nd4j.loss().softmaxCrossEntropy(expected,outputs,null);
+            LOGGER.info("Distillation cycle {}: Cost = {}\n\t\texpected = {}\n\t\tactual = {}\n",index,
+                        costs.meanNumber(),expected,outputs);
+        }
+        backPropagate(distillation.getErrors(digitIndex,outputs,expected));
+    }
+    
     private INDArray feedForward(INDArray inputs, boolean training) {
         return getInputLayer().feedForward(inputs,training);
     }
@@ -71,6 +101,13 @@ public class NeuralNet extends AbstractTrainable {
         return outputs;
     }
     
+    /**
+     * Runs the inputs through the network without any training behavior
+     */
+    public INDArray predict(INDArray inputs) {
+        return feedForward(inputs,false);
+    }
+    
     public Layer getInputLayer() {
         return this.layers[0];
     }
@@ -79,16 +116,47 @@ public class NeuralNet extends AbstractTrainable {
         return this.layers[this.layers.length-1];
     }
     
+    /**
+     * Returns the actual layer array so the structure can be inspected. Don't modify it!
+     */
+    public Layer[] getLayers() {
+        return this.layers;
+    }
+    
     public int getTrainingDataSize() {
         return getOutputLayer().getTrainingSize();
     }
     
+    /**
+     * Returns true if training data has been loaded since this network was built instead of only initial values
+     */
+    public boolean isLoaded() {
+        return this.loaded;
+    }
+    
     @Override public void load(@Nullable INDArray data) {
         if(Objects.isNull(data)) {
             LOGGER.info("Skipping load for empty training data set");
             return;
         }
         for(Layer layer : this.layers) layer.load(data);
+        this.loaded = true;
+    }
+    
+    /**
+     * Same as load but keeps the momentum of each layer instead of resetting it.
+     * Used when parameters are replaced mid-training, like when syncing with a parameter server.
+     */
+    public void loadParameters(INDArray data) {
+        for(Layer layer : this.layers) layer.loadParameters(data);
+        this.loaded = true;
+    }
+    
+    /**
+     * Writes the current training data to the data path of this network
+     */
+    public void save() {
+        NNIO.writeTrainingData(this.dataPath,savedTrainingData());
     }
     
     public INDArray savedTrainingData() {
@@ -102,19 +170,27 @@ public class NeuralNet extends AbstractTrainable {
     }
     
     public void test() {
-        List<DigitData> digits = MNIST.readTesting();
-        LOGGER.info("Running MNIST test with {} digits",digits.size());
+        List<DigitData> digits = MNIST.readTesting().cacheFloats();
         List<DigitData> wrong = new ArrayList<>();
+        test(digits,wrong);
+        if(!wrong.isEmpty()) ImageRender.INSTANCE.loadAndDisplay(MNIST.toImages(wrong));
+    }
+    
+    /**
+     * Returns the success rate as a percentage. Incorrectly guessed digits are added to the wrong list if it exists
+     */
+    public double test(List<DigitData> digits, @Nullable List<DigitData> wrong) {
+        LOGGER.info("Running MNIST test with {} digits",digits.size());
         int right = 0;
         for(int i=0;i<digits.size();i++) {
             DigitData digit = digits.get(i);
             int previous = right;
             right = test(digit,i+1,right);
-            if(previous==right) wrong.add(digit);
+            if(previous==right && Objects.nonNull(wrong)) wrong.add(digit);
         }
         double percent = (((double)right)/((double)digits.size()))*100d;
         LOGGER.info("Finished MNIST test with success rate of {}%",percent);
-        if(!wrong.isEmpty()) ImageRender.INSTANCE.loadAndDisplay(MNIST.toImages(wrong));
+        return percent;
     }
     
     private int test(DigitData digit, int index, int right) {
@@ -127,12 +203,26 @@ public class NeuralNet extends AbstractTrainable {
     
     public void train(int cycles) {
         LOGGER.info("Training data size is {}",getTrainingDataSize());
-        List<DigitData> digits = MNIST.readTraining();
+        List<DigitData> digits = MNIST.readTraining().cacheFloats();
         LOGGER.info("Running MNIST training with {} digits for {} cycles",digits.size(),cycles);
-        for(int c=0;c<cycles;c++)
-            for(int i=0;i<digits.size();i++) train(digits.get(i),(digits.size()*c)+i+1);
+        for(int c=0;c<cycles;c++) train(digits,c);
         LOGGER.info("Finished MNIST training cycle! Writing data to file");
-        NNIO.writeTrainingData("trained_data",savedTrainingData());
+        save();
+    }
+    
+    /**
+     * Runs a single training cycle over every digit without writing anything to file
+     */
+    public void train(List<DigitData> digits, int cycle) {
+        trainFrom(digits,digits.size()*cycle);
+    }
+    
+    /**
+     * Trains every digit without writing anything to file, numbering the steps after the given number of steps
+     * that were already run. Used when a cycle is split into chunks so the logged step numbers keep counting up.
+     */
+    public void trainFrom(List<DigitData> digits, int completed) {
+        for(int i=0;i<digits.size();i++) train(digits.get(i),completed+i+1);
     }
     
     private void train(DigitData digit, int index) {
@@ -155,6 +245,7 @@ public class NeuralNet extends AbstractTrainable {
         private final int[] hiddenLayers;
         private IWeightInit biasInit;
         private IWeightInit weightInit;
+        private String dataPath = "trained_data";
         
         Builder(int ... layers) {
             this.initialLayer = layers[0];
@@ -176,7 +267,7 @@ public class NeuralNet extends AbstractTrainable {
             for(int i=0;i<hiddenLayers.length;i++) layers[i+1] = new Layer(layers[i],this.hiddenLayers[i]);
             layers[layers.length-1] = new Layer(layers[layers.length-2],this.finalLayer);
             addParents(layers);
-            return new NeuralNet(layers,this.biasInit,this.weightInit);
+            return new NeuralNet(layers,this.biasInit,this.weightInit,this.dataPath);
         }
         
         public Builder setBiasInit(IWeightInit init) {
@@ -184,6 +275,14 @@ public class NeuralNet extends AbstractTrainable {
             return this;
         }
         
+        /**
+         * File name (without the .bytes extension) the training data is loaded from and written to
+         */
+        public Builder setDataPath(String path) {
+            this.dataPath = path;
+            return this;
+        }
+        
         public Builder setWeightInit(IWeightInit init) {
             this.weightInit = init;
             return this;
@@ -0,0 +1,63 @@
+package mods.thecomputerizer.javanet.parallel;
+
+import lombok.Getter;
+import mods.thecomputerizer.javanet.util.NNIO;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import static mods.thecomputerizer.javanet.parallel.ParameterServer.DONE;
+import static mods.thecomputerizer.javanet.parallel.ParameterServer.PULL;
+import static mods.thecomputerizer.javanet.parallel.ParameterServer.PUSH;
+
+/**
+ * Worker side connection to a ParameterServer.
+ * Tracks the version of the last pull so pushed deltas are checked against the parameters they were computed from.
+ */
+public class ParameterClient implements AutoCloseable {
+    
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    @Getter private long version;
+    
+    public ParameterClient(int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(),port);
+        this.socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+    }
+    
+    @Override public void close() throws IOException {
+        this.socket.close();
+    }
+    
+    public void done() throws IOException {
+        this.out.writeByte(DONE);
+        this.out.flush();
+    }
+    
+    public INDArray pull() throws IOException {
+        this.out.writeByte(PULL);
+        this.out.flush();
+        this.version = this.in.readLong();
+        return NNIO.toVector(ParameterServer.readBytes(this.in));
+    }
+    
+    /**
+     * Returns false if the server rejected the delta for being too stale
+     */
+    public boolean push(INDArray delta) throws IOException {
+        this.out.writeByte(PUSH);
+        this.out.writeLong(this.version);
+        ParameterServer.writeBytes(this.out,NNIO.toBytes(delta));
+        this.out.flush();
+        return this.in.readBoolean();
+    }
+}
@@ -0,0 +1,162 @@
+package mods.thecomputerizer.javanet.parallel;
+
+import mods.thecomputerizer.javanet.util.NNIO;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the flat parameter vector (as laid out by Layer#store) for workers in other processes.
+ * Workers pull the current parameters along with a version number and push back deltas computed against that
+ * version. A push is rejected if more than maxStaleness other pushes were accepted since the worker last pulled.
+ */
+public class ParameterServer implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet Parameter Server");
+    static final byte PULL = 1;
+    static final byte PUSH = 2;
+    static final byte DONE = 3;
+    
+    private final INDArray parameters;
+    private final int maxStaleness;
+    private final ServerSocket socket;
+    private final CountDownLatch finished;
+    private long version;
+    private long rejected;
+    
+    /**
+     * Binds to the loopback address. A port of 0 picks any free port which can be checked with getPort
+     */
+    public ParameterServer(INDArray parameters, int port, int workers, int maxStaleness) {
+        this.parameters = parameters.dup();
+        this.maxStaleness = maxStaleness;
+        this.finished = new CountDownLatch(workers);
+        try {
+            this.socket = new ServerSocket(port,workers,InetAddress.getLoopbackAddress());
+        } catch(IOException ex) {
+            throw new RuntimeException("Failed to bind parameter server to port "+port,ex);
+        }
+    }
+    
+    /**
+     * Returns true once every worker has reported that it is done or lost its connection.
+     * Workers that never connect are never counted, so callers should wait in a loop and check on the workers.
+     */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        if(!this.finished.await(timeout,unit)) return false;
+        LOGGER.info("All workers finished after {} accepted & {} rejected pushes",this.version,this.rejected);
+        return true;
+    }
+    
+    @Override public void close() {
+        try {
+            this.socket.close();
+        } catch(IOException ex) {
+            LOGGER.error("Failed to close parameter server socket",ex);
+        }
+    }
+    
+    public int getPort() {
+        return this.socket.getLocalPort();
+    }
+    
+    private void handle(Socket connection) {
+        try(connection;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            while(true) {
+                byte op = in.readByte();
+                switch(op) {
+                    case PULL -> pull(out);
+                    case PUSH -> push(in,out);
+                    case DONE -> {
+                        this.finished.countDown();
+                        return;
+                    }
+                    default -> throw new IOException("Unknown parameter server operation "+op);
+                }
+                out.flush();
+            }
+        } catch(IOException ex) {
+            //Count lost workers as finished so the server doesn't wait forever on a crashed process
+            LOGGER.error("Lost connection to worker {}",connection.getRemoteSocketAddress(),ex);
+            this.finished.countDown();
+        }
+    }
+    
+    private void pull(DataOutputStream out) throws IOException {
+        byte[] bytes;
+        long version;
+        synchronized(this) {
+            version = this.version;
+            bytes = NNIO.toBytes(this.parameters);
+        }
+        out.writeLong(version);
+        writeBytes(out,bytes);
+    }
+    
+    private void push(DataInputStream in, DataOutputStream out) throws IOException {
+        long base = in.readLong();
+        INDArray delta = NNIO.toVector(readBytes(in));
+        boolean accepted;
+        synchronized(this) {
+            accepted = this.version-base<=this.maxStaleness && delta.length()==this.parameters.length();
+            if(accepted) {
+                this.parameters.addi(delta);
+                this.version++;
+            } else this.rejected++;
+        }
+        out.writeBoolean(accepted);
+    }
+    
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+    
+    public synchronized INDArray snapshot() {
+        return this.parameters.dup();
+    }
+    
+    /**
+     * Accepts worker connections on a daemon thread with one handler thread per worker
+     */
+    public void start() {
+        LOGGER.info("Starting parameter server on port {}",getPort());
+        Thread acceptor = new Thread(() -> {
+            while(!this.socket.isClosed()) {
+                try {
+                    Socket connection = this.socket.accept();
+                    connection.setTcpNoDelay(true);
+                    Thread handler = new Thread(() -> handle(connection),"JavaNet Parameter Handler");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch(SocketException ex) {
+                    LOGGER.debug("Parameter server socket closed");
+                } catch(IOException ex) {
+                    LOGGER.error("Failed to accept worker connection",ex);
+                }
+            }
+        },"JavaNet Parameter Server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+    
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,65 @@
+package mods.thecomputerizer.javanet.parallel;
+
+import mods.thecomputerizer.javanet.neuralnet.NeuralNet;
+import mods.thecomputerizer.javanet.util.MNIST.DigitData;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Trains a local copy of the network on a shard of the data and synchronizes with a ParameterServer.
+ * After every syncInterval digits the change in parameters since the last pull is pushed and fresh parameters are
+ * pulled, so workers never wait on each other. The pull itself is a blocking round trip since the pulled parameters
+ * replace the local ones, and prefetching them while training would throw away whatever was trained in the meantime.
+ */
+public class ParameterWorker {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet Parameter Worker");
+    
+    private final NeuralNet neuralNet;
+    private final ParameterClient client;
+    private final int syncInterval;
+    private INDArray base;
+    private int accepted;
+    private int rejected;
+    
+    public ParameterWorker(NeuralNet neuralNet, ParameterClient client, int syncInterval) {
+        this.neuralNet = neuralNet;
+        this.client = client;
+        this.syncInterval = syncInterval;
+    }
+    
+    /**
+     * Momentum is kept across pulls so the optimization behaves like it does in a single process
+     */
+    private void pull() throws IOException {
+        this.base = this.client.pull();
+        this.neuralNet.loadParameters(this.base);
+    }
+    
+    /**
+     * Stale deltas are dropped rather than retried since the fresh parameters already moved past them
+     */
+    private void sync() throws IOException {
+        if(this.client.push(this.neuralNet.savedTrainingData().subi(this.base))) this.accepted++;
+        else this.rejected++;
+        pull();
+    }
+    
+    public void train(List<DigitData> shard, int cycles) throws IOException {
+        LOGGER.info("Training worker shard of {} digits for {} cycles",shard.size(),cycles);
+        pull();
+        for(int c=0;c<cycles;c++) {
+            for(int start=0;start<shard.size();start+=this.syncInterval) {
+                this.neuralNet.trainFrom(shard.subList(start,Math.min(start+this.syncInterval,shard.size())),
+                                         (shard.size()*c)+start);
+                sync();
+            }
+        }
+        this.client.done();
+        LOGGER.info("Finished worker shard with {} accepted & {} rejected pushes",this.accepted,this.rejected);
+    }
+}
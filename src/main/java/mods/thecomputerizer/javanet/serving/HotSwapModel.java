@@ -0,0 +1,161 @@
+package mods.thecomputerizer.javanet.serving;
+
+import mods.thecomputerizer.javanet.layer.Layer;
+import mods.thecomputerizer.javanet.neuralnet.NeuralNet;
+import mods.thecomputerizer.javanet.util.FunctionHelper;
+import mods.thecomputerizer.javanet.util.MNIST.DigitData;
+import mods.thecomputerizer.javanet.util.NNIO;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Serves predictions from a live parameter set that can be replaced while predictions are in flight.
+ * New parameters are fully built off to the side and then published with a single atomic swap, so readers never
+ * block and never see a partially updated network. The previously live set is kept around for rollback.
+ */
+public class HotSwapModel implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet Hot Swap");
+    
+    private final Layer[] layers;
+    private final long size;
+    private final AtomicReference<ParameterSet> live;
+    private ParameterSet previous;
+    private long version;
+    private WatchService watcher;
+    
+    /**
+     * The network is only used for its structure & starting parameters and can keep training independently
+     */
+    public HotSwapModel(NeuralNet neuralNet) {
+        this.layers = neuralNet.getLayers();
+        this.size = neuralNet.getTrainingDataSize();
+        this.live = new AtomicReference<>(new ParameterSet(this.layers,neuralNet.savedTrainingData(),0L));
+    }
+    
+    @Override public void close() {
+        if(Objects.isNull(this.watcher)) return;
+        try {
+            this.watcher.close();
+        } catch(IOException ex) {
+            LOGGER.error("Failed to close checkpoint watcher",ex);
+        }
+    }
+    
+    public long getVersion() {
+        return this.live.get().getVersion();
+    }
+    
+    public INDArray predict(INDArray inputs) {
+        return this.live.get().predict(inputs);
+    }
+    
+    /**
+     * Returns false without changing the live parameters if the data does not match the network structure or is
+     * identical to the live parameters
+     */
+    public boolean publish(@Nullable INDArray data) {
+        if(Objects.isNull(data) || data.length()!=this.size) {
+            LOGGER.error("Rejecting checkpoint with {} values (expected {})",
+                         Objects.isNull(data) ? 0 : data.length(),this.size);
+            return false;
+        }
+        synchronized(this) {
+            //Republishing the live parameters would overwrite the previous set and make rollback a no-op
+            if(this.live.get().matches(this.layers,data)) {
+                LOGGER.info("Skipping checkpoint identical to live parameter version {}",getVersion());
+                return false;
+            }
+            swap(new ParameterSet(this.layers,data,++this.version));
+        }
+        return true;
+    }
+    
+    /**
+     * Publishes a checkpoint written by NNIO
+     */
+    public boolean publish(String path) {
+        LOGGER.info("Loading checkpoint {}",path);
+        return publish(NNIO.getTrainingData(path));
+    }
+    
+    /**
+     * Swaps the previously live parameters back in. Rolling back twice restores the newer parameters.
+     */
+    public synchronized boolean rollback() {
+        if(Objects.isNull(this.previous)) {
+            LOGGER.warn("Nothing to roll back to");
+            return false;
+        }
+        swap(this.previous);
+        return true;
+    }
+    
+    private synchronized void swap(ParameterSet parameters) {
+        this.previous = this.live.getAndSet(parameters);
+        LOGGER.info("Published parameter version {} (replaced version {})",parameters.getVersion(),
+                    this.previous.getVersion());
+    }
+    
+    /**
+     * Returns the success rate as a percentage
+     */
+    public double test(List<DigitData> digits) {
+        ParameterSet parameters = this.live.get(); //Pin a single version for the whole test
+        int right = 0;
+        for(DigitData digit : digits)
+            if(FunctionHelper.maxIndex(parameters.predict(digit.getData()))==digit.getExpected()) right++;
+        double percent = (((double)right)/((double)digits.size()))*100d;
+        LOGGER.info("Parameter version {} has a success rate of {}%",parameters.getVersion(),percent);
+        return percent;
+    }
+    
+    /**
+     * Publishes the checkpoint at the path whenever its file is created or modified in the working directory.
+     * NNIO writes checkpoints atomically, so the watcher never reads a partially written file.
+     */
+    public void watch(String path) throws IOException {
+        if(Objects.nonNull(this.watcher)) throw new RuntimeException("Already watching for checkpoints");
+        String fileName = path+".bytes";
+        Path file = Paths.get(fileName).toAbsolutePath();
+        this.watcher = FileSystems.getDefault().newWatchService();
+        file.getParent().register(this.watcher,ENTRY_CREATE,ENTRY_MODIFY);
+        WatchService watcher = this.watcher;
+        Thread thread = new Thread(() -> {
+            try {
+                while(true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for(WatchEvent<?> event : key.pollEvents())
+                        if(file.getFileName().equals(event.context())) changed = true;
+                    if(changed) publish(path);
+                    if(!key.reset()) return;
+                }
+            } catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch(ClosedWatchServiceException ex) {
+                LOGGER.debug("Stopped watching {}",fileName);
+            }
+        },"JavaNet Checkpoint Watcher");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("Watching {} for new checkpoints",file);
+    }
+}
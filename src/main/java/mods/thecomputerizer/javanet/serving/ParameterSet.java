@@ -0,0 +1,54 @@
+package mods.thecomputerizer.javanet.serving;
+
+import lombok.Getter;
+import mods.thecomputerizer.javanet.layer.Layer;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Immutable copy of the parameters of a network for inference.
+ * Unlike Layer, no activation values are stored between calls so any number of threads can predict at once.
+ */
+public class ParameterSet {
+    
+    private final INDArray[] biases;
+    private final INDArray[] weights;
+    private final IActivation[] functions;
+    @Getter private final long version;
+    
+    /**
+     * Copies the flat training data (as laid out by Layer#store) into separate arrays for each layer
+     */
+    ParameterSet(Layer[] layers, INDArray data, long version) {
+        this.biases = new INDArray[layers.length-1];
+        this.weights = new INDArray[layers.length-1];
+        this.functions = new IActivation[layers.length-1];
+        this.version = version;
+        for(int i=1;i<layers.length;i++) {
+            Layer layer = layers[i];
+            this.biases[i-1] = layer.getBiasView(data).dup();
+            int previous = layer.getPrevious().getSize();
+            this.weights[i-1] = layer.getWeightView(data).reshape('c',layer.getSize(),previous).dup();
+            this.functions[i-1] = layer.getFunction();
+        }
+    }
+    
+    /**
+     * Returns true if the flat training data holds exactly the same parameters as this set
+     */
+    boolean matches(Layer[] layers, INDArray data) {
+        for(int i=1;i<layers.length;i++) {
+            Layer layer = layers[i];
+            if(!this.biases[i-1].equalsWithEps(layer.getBiasView(data),0d)) return false;
+            if(!this.weights[i-1].ravel().equalsWithEps(layer.getWeightView(data),0d)) return false;
+        }
+        return true;
+    }
+    
+    public INDArray predict(INDArray inputs) {
+        INDArray activations = inputs;
+        for(int i=0;i<this.weights.length;i++)
+            activations = this.functions[i].getActivation(this.weights[i].mmul(activations).addi(this.biases[i]),false);
+        return activations;
+    }
+}
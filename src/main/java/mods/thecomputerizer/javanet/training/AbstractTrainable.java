@@ -31,10 +31,6 @@ public abstract class AbstractTrainable implements Trainable {
         return NDArrayIndex.interval(start,end);
     }
     
-    protected INDArrayIndex[] intervalAsArray(long start, long end) {
-        return new INDArrayIndex[]{interval(start,end)};
-    }
-    
     /**
      * There are probably more, but I only care about softmax for now
      */
@@ -0,0 +1,286 @@
+package mods.thecomputerizer.javanet.util;
+
+import lombok.Getter;
+import mods.thecomputerizer.javanet.neuralnet.NeuralNet;
+import mods.thecomputerizer.javanet.util.MNIST.DigitData;
+import org.bytedeco.javacpp.Pointer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.management.MemoryType.HEAP;
+
+/**
+ * End-to-end benchmark of a single fixed seed training cycle & a full test evaluation.
+ * Reports are written as flat JSON objects and can be compared against a stored baseline report.
+ */
+public class Benchmark {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet Benchmark");
+    private static final String DATA_PATH = "benchmark_data";
+    private static final double MEGABYTE = 1024d*1024d;
+    private static final Pattern JSON_NUMBER = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.]+(?:[eE][-+]?[0-9]+)?)");
+    private static final Pattern JSON_STRING = Pattern.compile("\"(\\w+)\"\\s*:\\s*\"([^\"]*)\"");
+    private static final String[] INFO_KEYS = {"backend","nd4j_version","dl4j_version"};
+    
+    /**
+     * Gets the version from the jar manifest if it has one and from the bundled Maven pom.properties otherwise
+     */
+    private static String libraryVersion(Class<?> type, String group, String artifact) {
+        String version = type.getPackage().getImplementationVersion();
+        if(Objects.nonNull(version)) return version;
+        String path = "/META-INF/maven/"+group+"/"+artifact+"/pom.properties";
+        try(InputStream stream = type.getResourceAsStream(path)) {
+            if(Objects.nonNull(stream)) {
+                Properties properties = new Properties();
+                properties.load(stream);
+                return properties.getProperty("version","unknown");
+            }
+        } catch(IOException ex) {
+            LOGGER.error("Failed to read the version of {}:{}",group,artifact,ex);
+        }
+        return "unknown";
+    }
+    
+    public static Report read(String path) {
+        byte[] bytes = NNIO.readFromFile(path,".json");
+        if(bytes.length==0) return null;
+        Report report = new Report();
+        String json = new String(bytes,StandardCharsets.UTF_8);
+        Matcher strings = JSON_STRING.matcher(json);
+        while(strings.find())
+            if(Arrays.asList(INFO_KEYS).contains(strings.group(1))) report.info.put(strings.group(1),strings.group(2));
+        Matcher matcher = JSON_NUMBER.matcher(json);
+        while(matcher.find()) {
+            Metric metric = Metric.byKey(matcher.group(1));
+            if(Objects.nonNull(metric)) report.put(metric,Double.parseDouble(matcher.group(2)));
+        }
+        return report;
+    }
+    
+    /**
+     * The builder is expected to have its structure & initializers set already.
+     * The data path is overridden so the benchmark always starts from the seeded initial values.
+     */
+    public static Report run(NeuralNet.Builder builder, long seed) {
+        List<DigitData> training = MNIST.readTraining().cacheFloats();
+        List<DigitData> testing = MNIST.readTesting().cacheFloats();
+        if(training.isEmpty() || testing.isEmpty())
+            throw new RuntimeException("Benchmark needs MNIST data but found "+training.size()+" training & "+
+                                       testing.size()+" testing digits");
+        LOGGER.info("Running benchmark with seed {} ({} training & {} testing digits)",seed,training.size(),
+                    testing.size());
+        NNIO.delete(DATA_PATH,".bytes");
+        MemorySampler sampler = new MemorySampler();
+        Report report = new Report();
+        report.info.put("backend",Nd4j.getBackend().getClass().getSimpleName());
+        report.info.put("nd4j_version",libraryVersion(Nd4j.class,"org.nd4j","nd4j-api"));
+        report.info.put("dl4j_version",
+                        libraryVersion(MultiLayerNetwork.class,"org.deeplearning4j","deeplearning4j-nn"));
+        long start = System.nanoTime();
+        try {
+            Nd4j.getRandom().setSeed(seed);
+            NeuralNet neuralNet = builder.setDataPath(DATA_PATH).build();
+            long trainStart = System.nanoTime();
+            neuralNet.train(training,0);
+            double trainSeconds = secondsSince(trainStart);
+            long testStart = System.nanoTime();
+            double accuracy = neuralNet.test(testing,null);
+            double testSeconds = secondsSince(testStart);
+            NNIO.writeTrainingData(DATA_PATH,neuralNet.savedTrainingData());
+            long loadStart = System.nanoTime();
+            INDArray data = NNIO.getTrainingData(DATA_PATH);
+            neuralNet.load(data);
+            double loadMillis = (System.nanoTime()-loadStart)/1e6d;
+            report.put(Metric.WALL_SECONDS,secondsSince(start));
+            report.put(Metric.TRAIN_SECONDS,trainSeconds);
+            report.put(Metric.TRAIN_SAMPLES_PER_SECOND,training.size()/trainSeconds);
+            report.put(Metric.TEST_SAMPLES_PER_SECOND,testing.size()/testSeconds);
+            report.put(Metric.MODEL_LOAD_MILLIS,loadMillis);
+            report.put(Metric.ACCURACY,accuracy);
+        } finally {
+            sampler.close();
+            NNIO.delete(DATA_PATH,".bytes");
+        }
+        report.put(Metric.PEAK_HEAP_MB,sampler.getPeakHeap()/MEGABYTE);
+        report.put(Metric.PEAK_OFF_HEAP_MB,sampler.getPeakOffHeap()/MEGABYTE);
+        LOGGER.info("Finished benchmark\n{}",report.toJson());
+        return report;
+    }
+    
+    private static double secondsSince(long start) {
+        return (System.nanoTime()-start)/1e9d;
+    }
+    
+    public static void write(String path, Report report) {
+        NNIO.writeToFile(path,".json",report.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+    
+    @Getter
+    public enum Metric {
+        
+        WALL_SECONDS("wall_seconds",false,false,1d),
+        TRAIN_SECONDS("train_seconds",false,false,1d),
+        TRAIN_SAMPLES_PER_SECOND("train_samples_per_second",true,false,0d),
+        TEST_SAMPLES_PER_SECOND("test_samples_per_second",true,false,0d),
+        PEAK_HEAP_MB("peak_heap_mb",false,false,16d),
+        PEAK_OFF_HEAP_MB("peak_off_heap_mb",false,false,16d),
+        MODEL_LOAD_MILLIS("model_load_millis",false,false,5d),
+        ACCURACY("accuracy",true,true,0d);
+        
+        /**
+         * Returns null for unknown keys so reports from older or newer versions can still be compared
+         */
+        static Metric byKey(String key) {
+            for(Metric metric : values())
+                if(metric.key.equals(key)) return metric;
+            return null;
+        }
+        
+        private final String key;
+        private final boolean higherIsBetter;
+        private final boolean percentage; //Compared by percentage points instead of the relative threshold
+        private final double slack; //Absolute difference that is always tolerated to avoid failing on timer noise
+        
+        Metric(String key, boolean higherIsBetter, boolean percentage, double slack) {
+            this.key = key;
+            this.higherIsBetter = higherIsBetter;
+            this.percentage = percentage;
+            this.slack = slack;
+        }
+        
+        /**
+         * Percentage metrics regress when they are worse than the baseline by more than the tolerance in percentage
+         * points. Everything else regresses when it is worse by more than the threshold fraction of the baseline.
+         */
+        boolean isRegression(double baseline, double current, double threshold, double tolerance) {
+            double worse = this.higherIsBetter ? baseline-current : current-baseline;
+            if(this.percentage) return worse>tolerance;
+            return worse>this.slack && worse>Math.abs(baseline)*threshold;
+        }
+    }
+    
+    /**
+     * Samples heap & native memory usage in the background so short lived spikes are still caught
+     */
+    private static class MemorySampler implements AutoCloseable {
+        
+        private final List<MemoryPoolMXBean> heapPools;
+        private final AtomicLong peakOffHeap;
+        private final ScheduledExecutorService executor;
+        
+        MemorySampler() {
+            this.heapPools = new ArrayList<>();
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if(pool.getType()!=HEAP) continue;
+                pool.resetPeakUsage();
+                this.heapPools.add(pool);
+            }
+            this.peakOffHeap = new AtomicLong(Pointer.totalBytes());
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable,"JavaNet Memory Sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.scheduleAtFixedRate(this::sample,0L,50L,TimeUnit.MILLISECONDS);
+        }
+        
+        @Override public void close() {
+            this.executor.shutdownNow();
+            sample();
+        }
+        
+        long getPeakHeap() {
+            long peak = 0L;
+            for(MemoryPoolMXBean pool : this.heapPools) peak+=pool.getPeakUsage().getUsed();
+            return peak;
+        }
+        
+        long getPeakOffHeap() {
+            return this.peakOffHeap.get();
+        }
+        
+        private void sample() {
+            this.peakOffHeap.accumulateAndGet(Pointer.totalBytes(),Math::max);
+        }
+    }
+    
+    public static class Report {
+        
+        private final Map<String,String> info; //Backend & library versions the report was measured with
+        private final Map<Metric,Double> values;
+        
+        private Report() {
+            this.info = new LinkedHashMap<>();
+            this.values = new EnumMap<>(Metric.class);
+        }
+        
+        /**
+         * NaN & infinite values aren't valid JSON and silently pass every comparison, so they're rejected up front
+         */
+        private void put(Metric metric, double value) {
+            if(!Double.isFinite(value)) throw new RuntimeException("Benchmark metric "+metric.key+" is "+value);
+            this.values.put(metric,value);
+        }
+        
+        /**
+         * Logs every metric against the baseline and returns the ones that regressed beyond the threshold fraction
+         * or, for percentage metrics like accuracy, beyond the tolerance in percentage points
+         */
+        public List<Metric> compare(Report baseline, double threshold, double tolerance) {
+            for(String key : INFO_KEYS)
+                LOGGER.info("{}: baseline = {} current = {}",key,baseline.info.getOrDefault(key,"unknown"),
+                            this.info.getOrDefault(key,"unknown"));
+            List<Metric> regressions = new ArrayList<>();
+            for(Map.Entry<Metric,Double> entry : this.values.entrySet()) {
+                Metric metric = entry.getKey();
+                Double base = baseline.values.get(metric);
+                if(Objects.isNull(base)) {
+                    LOGGER.warn("Baseline is missing {}",metric.key);
+                    continue;
+                }
+                double current = entry.getValue();
+                boolean regressed = metric.isRegression(base,current,threshold,tolerance);
+                if(regressed) {
+                    regressions.add(metric);
+                    LOGGER.error("Regression in {}: baseline = {} current = {}",metric.key,base,current);
+                } else LOGGER.info("{}: baseline = {} current = {}",metric.key,base,current);
+            }
+            return regressions;
+        }
+        
+        public String toJson() {
+            StringBuilder builder = new StringBuilder("{\n");
+            for(Map.Entry<String,String> entry : this.info.entrySet())
+                builder.append("  \"").append(entry.getKey()).append("\": \"").append(entry.getValue()).append("\",\n");
+            int count = 0;
+            for(Map.Entry<Metric,Double> entry : this.values.entrySet()) {
+                builder.append("  \"").append(entry.getKey().key).append("\": ").append(entry.getValue());
+                builder.append(++count<this.values.size() ? ",\n" : "\n");
+            }
+            return builder.append("}").toString();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package mods.thecomputerizer.javanet.util;
+
+import lombok.Getter;
+import mods.thecomputerizer.javanet.util.MNIST.DigitData;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.indexer.UByteIndexer;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import static org.nd4j.linalg.api.buffer.DataType.FLOAT;
+import static org.nd4j.linalg.api.buffer.DataType.UINT8;
+
+/**
+ * Stores every sample of a data set in a single contiguous off-heap block of unsigned bytes with one row per sample.
+ * The block can be a memory-mapped file, in which case it is shared through the page cache instead of copied.
+ * By default, pixels are converted to floats in [0,1] per row or per batch when they are requested, which allocates on
+ * every access. Loops that go over every digit each cycle should call cacheFloats first, which converts the whole set
+ * once into a private float block (4x the size of the shared bytes) so rows become zero-copy views again.
+ * The one-hot expected activations are rows of a shared identity matrix.
+ */
+public class DigitSet extends AbstractList<DigitData> implements RandomAccess {
+    
+    public static final int PIXELS = 784;
+    public static final int LABELS = 10;
+    private static final INDArray ONE_HOT = Nd4j.eye(LABELS).castTo(FLOAT);
+    
+    public static DigitSet empty() {
+        return new DigitSet(ByteBuffer.allocateDirect(0),new int[]{});
+    }
+    
+    /**
+     * Copies unsigned byte pixel values laid out in row major order into a new direct buffer
+     */
+    public static DigitSet of(byte[] pixels, int[] labels) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pixels.length);
+        buffer.put(pixels).flip();
+        return wrap(buffer,labels);
+    }
+    
+    private static INDArray toFloat(INDArray bytes) {
+        return bytes.castTo(FLOAT).divi(255f);
+    }
+    
+    /**
+     * Wraps a direct buffer (like a memory-mapped file) of unsigned byte pixel values without copying it.
+     * The buffer must not be modified while the set is in use.
+     */
+    public static DigitSet wrap(ByteBuffer pixels, int[] labels) {
+        if(!pixels.isDirect()) throw new RuntimeException("Digit set pixels must be stored in a direct buffer!");
+        if(pixels.remaining()!=(long)labels.length*PIXELS)
+            throw new RuntimeException("Pixel count mismatch! Expected "+((long)labels.length*PIXELS)+" values "+
+                                       "but got "+pixels.remaining());
+        return new DigitSet(pixels.slice(),labels);
+    }
+    
+    private static INDArray wrapBytes(ByteBuffer bytes, int count) {
+        if(count==0) return Nd4j.create(UINT8,0,PIXELS);
+        BytePointer pointer = new BytePointer(bytes);
+        DataBuffer buffer = Nd4j.createBuffer(pointer,UINT8,bytes.remaining(),UByteIndexer.create(pointer));
+        return Nd4j.create(buffer,count,PIXELS);
+    }
+    
+    private final ByteBuffer bytes; //Keeps the backing buffer (and any file mapping) reachable for the pixel array
+    @Getter private final INDArray pixels; //Unsigned byte [size, PIXELS] view of the backing buffer
+    private final int[] labels;
+    private volatile INDArray floats; //Float [size, PIXELS] copy of the pixels once cacheFloats has been called
+    
+    private DigitSet(ByteBuffer bytes, int[] labels) {
+        this.bytes = bytes;
+        this.pixels = wrapBytes(bytes,labels.length);
+        this.labels = labels;
+    }
+    
+    /**
+     * Converts every pixel to a float once so rows & batches no longer need to be converted on every access.
+     * Trades the memory of a private float copy for not allocating a new row per digit per cycle.
+     */
+    public synchronized DigitSet cacheFloats() {
+        if(Objects.isNull(this.floats)) this.floats = toFloat(this.pixels);
+        return this;
+    }
+    
+    /**
+     * Returns a read only view of the raw unsigned byte pixels for writing the set elsewhere
+     */
+    ByteBuffer getBytes() {
+        return this.bytes.asReadOnlyBuffer();
+    }
+    
+    /**
+     * Copies the requested rows into a new [indices, PIXELS] float matrix for batched access
+     */
+    public INDArray gatherPixels(int ... indices) {
+        INDArray floats = this.floats;
+        return Objects.nonNull(floats) ? floats.getRows(indices) : toFloat(this.pixels.getRows(indices));
+    }
+    
+    /**
+     * Builds a one-hot [indices, LABELS] matrix for the requested rows
+     */
+    public INDArray gatherExpected(int ... indices) {
+        int[] labels = new int[indices.length];
+        for(int i=0;i<indices.length;i++) labels[i] = this.labels[indices[i]];
+        return ONE_HOT.getRows(labels);
+    }
+    
+    @Override public DigitData get(int index) {
+        int expected = this.labels[index];
+        return new DigitData(expected,getRow(index),ONE_HOT.getRow(expected));
+    }
+    
+    public int getLabel(int index) {
+        return this.labels[index];
+    }
+    
+    /**
+     * Zero-copy unsigned byte view of the pixels for a single sample
+     */
+    public INDArray getRawRow(int index) {
+        return this.pixels.getRow(index);
+    }
+    
+    /**
+     * Pixels for a single sample as floats in [0,1]. Zero-copy if cacheFloats has been called and converted otherwise.
+     */
+    public INDArray getRow(int index) {
+        INDArray floats = this.floats;
+        return Objects.nonNull(floats) ? floats.getRow(index) : toFloat(getRawRow(index));
+    }
+    
+    /**
+     * Copies every count-th digit starting at index into a new contiguous set
+     */
+    public DigitSet shard(int index, int count) {
+        int[] indices = new int[Math.max(0,(size()-index+count-1)/count)];
+        for(int i=0;i<indices.length;i++) indices[i] = index+(i*count);
+        if(indices.length==0) return empty();
+        int[] labels = new int[indices.length];
+        byte[] pixels = new byte[indices.length*PIXELS];
+        for(int i=0;i<indices.length;i++) {
+            labels[i] = this.labels[indices[i]];
+            this.bytes.get(indices[i]*PIXELS,pixels,i*PIXELS,PIXELS);
+        }
+        return of(pixels,labels);
+    }
+    
+    @Override public int size() {
+        return this.labels.length;
+    }
+}
@@ -0,0 +1,108 @@
+package mods.thecomputerizer.javanet.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Binary data set cache using the standard MNIST IDX layout.
+ * Images are stored as unsigned bytes in an idx3 file and labels in a separate idx1 file, both big endian with a
+ * magic number followed by the dimension sizes. Files are memory-mapped when read so multiple processes on the same
+ * machine share the page cache.
+ */
+public class IDX {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet IDX");
+    private static final String CACHE_DIR = "mnist_cache/";
+    private static final int IMAGES_MAGIC = 0x00000803;
+    private static final int LABELS_MAGIC = 0x00000801;
+    private static final int SIDE = 28;
+    
+    private static File imagesFile(String path) {
+        return NNIO.getFile(CACHE_DIR+path+"-images.idx3-ubyte",false);
+    }
+    
+    private static File labelsFile(String path) {
+        return NNIO.getFile(CACHE_DIR+path+"-labels.idx1-ubyte",false);
+    }
+    
+    /**
+     * Returns true if both cache files exist and are at least as new as the source.
+     * A source modification time of 0 means it is unknown, in which case any existing cache is considered valid.
+     */
+    public static boolean isCached(String path, long sourceModified) {
+        File images = imagesFile(path);
+        File labels = labelsFile(path);
+        if(!images.exists() || !labels.exists()) return false;
+        return Math.min(images.lastModified(),labels.lastModified())>=sourceModified;
+    }
+    
+    private static MappedByteBuffer map(File file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath(),READ)) {
+            return channel.map(READ_ONLY,0L,channel.size()); //The mapping stays valid after the channel is closed
+        }
+    }
+    
+    /**
+     * Returns null if the cache is missing or malformed so the caller can fall back to parsing the source
+     */
+    public static @Nullable DigitSet read(String path) {
+        try {
+            MappedByteBuffer images = map(imagesFile(path));
+            MappedByteBuffer labels = map(labelsFile(path));
+            int count = readImagesHeader(images);
+            if(count<=0 || readLabelsHeader(labels)!=count) { //An empty cache is never valid
+                LOGGER.warn("Ignoring malformed IDX cache for {}",path);
+                return null;
+            }
+            int[] labelArray = new int[count];
+            for(int i=0;i<count;i++) labelArray[i] = labels.get()&0xFF;
+            LOGGER.info("Mapped {} digits from IDX cache for {}",count,path);
+            return DigitSet.wrap(images,labelArray); //The header has already been read past
+        } catch(IOException ex) {
+            LOGGER.error("Failed to read IDX cache for {}",path,ex);
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the image count or -1 if the header does not match the expected dimensions or file size
+     */
+    private static int readImagesHeader(ByteBuffer buffer) {
+        if(buffer.remaining()<16 || buffer.getInt()!=IMAGES_MAGIC) return -1;
+        int count = buffer.getInt();
+        if(buffer.getInt()!=SIDE || buffer.getInt()!=SIDE) return -1;
+        return buffer.remaining()==(long)count*DigitSet.PIXELS ? count : -1;
+    }
+    
+    private static int readLabelsHeader(ByteBuffer buffer) {
+        if(buffer.remaining()<8 || buffer.getInt()!=LABELS_MAGIC) return -1;
+        int count = buffer.getInt();
+        return buffer.remaining()==count ? count : -1;
+    }
+    
+    public static void write(String path, DigitSet digits) {
+        int count = digits.size();
+        ByteBuffer images = ByteBuffer.allocate(16+count*DigitSet.PIXELS);
+        images.putInt(IMAGES_MAGIC).putInt(count).putInt(SIDE).putInt(SIDE).put(digits.getBytes());
+        ByteBuffer labels = ByteBuffer.allocate(8+count);
+        labels.putInt(LABELS_MAGIC).putInt(count);
+        for(int i=0;i<count;i++) labels.put((byte)digits.getLabel(i));
+        try {
+            NNIO.writeAtomic(imagesFile(path),images.flip());
+            NNIO.writeAtomic(labelsFile(path),labels.flip());
+            LOGGER.info("Wrote IDX cache with {} digits for {}",count,path);
+        } catch(IOException ex) {
+            LOGGER.error("Failed to write IDX cache for {}",path,ex);
+        }
+    }
+}
@@ -3,7 +3,6 @@ package mods.thecomputerizer.javanet.util;
 import au.com.bytecode.opencsv.CSVReader;
 import lombok.Getter;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.factory.Nd4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,6 +10,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -18,54 +18,99 @@ import java.util.List;
 import java.util.Objects;
 
 import static java.awt.image.BufferedImage.TYPE_BYTE_GRAY;
-import static org.nd4j.linalg.api.buffer.DataType.FLOAT;
 
 public class MNIST {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet MNIST");
+    private static final String TESTING = "testing/mnist_test";
+    private static final String TRAINING = "training/mnist_train";
     
-    private static List<String> flatten(List<String[]> parsedCSV) {
-        List<String> elements = new ArrayList<>();
-        for(String[] line : parsedCSV) elements.addAll(Arrays.asList(line));
-        return elements;
+    /**
+     * Each row is the expected digit followed by the pixel values.
+     * Rows are streamed one at a time straight into one flat array that backs the entire data set.
+     */
+    private static DigitSet parseFrom(CSVReader reader, String path) throws IOException {
+        int[] labels = new int[1024];
+        byte[] pixels = new byte[labels.length*DigitSet.PIXELS];
+        int count = 0;
+        String[] row;
+        while(Objects.nonNull(row = reader.readNext())) {
+            if(row.length<=DigitSet.PIXELS) {
+                LOGGER.warn("Skipping malformed row with {} values in {}",row.length,path);
+                continue;
+            }
+            if(count==labels.length) {
+                labels = Arrays.copyOf(labels,count*2);
+                pixels = Arrays.copyOf(pixels,labels.length*DigitSet.PIXELS);
+            }
+            labels[count] = Integer.parseInt(row[0]);
+            int offset = count*DigitSet.PIXELS;
+            for(int i=0;i<DigitSet.PIXELS;i++)
+                pixels[offset+i] = (byte)Math.clamp(Integer.parseInt(row[i+1].trim()),0,255);
+            count++;
+        }
+        return DigitSet.of(Arrays.copyOf(pixels,count*DigitSet.PIXELS),Arrays.copyOf(labels,count));
     }
     
-    private static List<DigitData> parseFrom(List<String> elements) {
-        List<DigitData> digits = new ArrayList<>();
-        double[] data = new double[784];
-        int counter = 0;
-        int expected = 0;
-        for(String element : elements) {
-            if(counter==0) expected = Integer.parseInt(element);
-            else data[counter-1] = Double.parseDouble(element);
-            counter++;
-            if(counter>784) {
-                digits.add(new DigitData(expected,Arrays.copyOf(data,data.length)));
-                data = new double[data.length];
-                counter = 0;
-            }
+    public static DigitSet readTesting() {
+        return read(TESTING);
+    }
+    
+    public static DigitSet readTraining() {
+        return read(TRAINING);
+    }
+    
+    /**
+     * Reads from the IDX cache when it exists and is at least as new as the CSV resource.
+     * Otherwise, the CSV is parsed and the cache is (re)written for the next run.
+     */
+    public static DigitSet read(String path) {
+        URL resource = MNIST.class.getClassLoader().getResource(path+".csv");
+        long modified = Objects.nonNull(resource) ? lastModified(resource) : 0L;
+        if(IDX.isCached(path,modified)) {
+            DigitSet cached = IDX.read(path);
+            if(Objects.nonNull(cached)) return cached;
         }
+        if(Objects.isNull(resource)) return DigitSet.empty();
+        DigitSet digits = readCSV(resource,path);
+        if(!digits.isEmpty()) IDX.write(path,digits);
         return digits;
     }
     
-    public static List<DigitData> readTesting() {
-        return read("testing/mnist_test");
+    /**
+     * Forces the CSV resources to be parsed and written to the IDX cache
+     */
+    public static void rebuildCache() {
+        for(String path : new String[]{TRAINING,TESTING}) {
+            URL resource = MNIST.class.getClassLoader().getResource(path+".csv");
+            if(Objects.isNull(resource)) {
+                LOGGER.warn("Unable to cache missing CSV resource {}",path);
+                continue;
+            }
+            DigitSet digits = readCSV(resource,path);
+            if(digits.isEmpty()) LOGGER.warn("Not caching {} since no digits were parsed from it",path);
+            else IDX.write(path,digits);
+        }
     }
     
-    public static List<DigitData> readTraining() {
-        return read("training/mnist_train");
+    private static long lastModified(URL resource) {
+        try {
+            return resource.openConnection().getLastModified();
+        } catch(IOException ex) {
+            LOGGER.error("Failed to get the last modified time of {}",resource,ex);
+        }
+        return 0L;
     }
     
-    public static List<DigitData> read(String path) {
-        try(InputStream stream = MNIST.class.getClassLoader().getResourceAsStream(path+".csv")) {
-            if(Objects.isNull(stream)) return List.of();
+    public static DigitSet readCSV(URL resource, String path) {
+        try(InputStream stream = resource.openStream()) {
             try(InputStreamReader reader = new InputStreamReader(stream)) {
-                return parseFrom(flatten(new CSVReader(reader).readAll()));
+                return parseFrom(new CSVReader(reader),path);
             }
         } catch(IOException ex) {
             LOGGER.error("Failed to read CSV from {}",path,ex);
         }
-        return List.of();
+        return DigitSet.empty();
     }
     
     public static Collection<BufferedImage> toImages(Collection<DigitData> digits) {
@@ -81,11 +126,13 @@ public class MNIST {
         private final INDArray expectedActivation;
         private final INDArray data;
         
-        private DigitData(int expected, double[] data) {
+        /**
+         * The expected activation is shared between every digit with the same answer and should not be modified
+         */
+        DigitData(int expected, INDArray data, INDArray expectedActivation) {
             this.expected = expected;
-            this.expectedActivation = Nd4j.zeros(FLOAT,10);
-            this.expectedActivation.putScalar(expected,1f);
-            this.data = Nd4j.createFromArray(data).divi(255d).castTo(FLOAT);
+            this.expectedActivation = expectedActivation;
+            this.data = data;
         }
         
         private void addAnswerSquares(BufferedImage image) {
@@ -7,14 +7,23 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Objects;
+import java.util.Set;
 
 import static java.lang.Float.BYTES;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * I/O Helper methods for storing/retrieving training data
@@ -23,9 +32,10 @@ public class NNIO {
     
     private static final Logger LOGGER = LoggerFactory.getLogger("JavaNet I/O");
     private static final Path WORKING_PATH = Paths.get("");
+    private static final Set<PosixFilePermission> DEFAULT_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
     
     @SuppressWarnings("ResultOfMethodCallIgnored")
-    private static File getFile(String path, boolean create) {
+    static File getFile(String path, boolean create) {
         File file = new File(WORKING_PATH.toAbsolutePath().toFile(),path);
         if(create && !file.exists()) {
             try {
@@ -37,13 +47,22 @@ public class NNIO {
         return file;
     }
     
+    public static boolean delete(String path, String extension) {
+        File file = getFile(path+extension,false);
+        return file.exists() && file.delete();
+    }
+    
     public static INDArray getTrainingData(String path) {
         byte[] bytes = readFromFile(path);
         return bytes.length==0 ? null : toVector(bytes);
     }
     
     public static byte[] readFromFile(String path) {
-        File file = getFile(path+".bytes",false);
+        return readFromFile(path,".bytes");
+    }
+    
+    public static byte[] readFromFile(String path, String extension) {
+        File file = getFile(path+extension,false);
         if(!file.exists()) {
             LOGGER.warn("No file exists at {}",file.getAbsolutePath());
             return new byte[]{};
@@ -75,9 +94,43 @@ public class NNIO {
     }
     
     public static void writeToFile(String path, byte[] bytes) {
-        try(FileOutputStream stream = new FileOutputStream(getFile(path+".bytes",true))) {
+        writeToFile(path,".bytes",bytes);
+    }
+    
+    /**
+     * Temporary files are created as owner only, so they get the permissions of the file they replace (or rw-r--r--
+     * for new files) before being moved into place. Otherwise, other users & processes couldn't read the result.
+     */
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        if(Objects.isNull(Files.getFileAttributeView(to,PosixFileAttributeView.class))) return;
+        Set<PosixFilePermission> permissions = Files.exists(from) ? Files.getPosixFilePermissions(from) :
+                DEFAULT_PERMISSIONS;
+        Files.setPosixFilePermissions(to,permissions);
+    }
+    
+    /**
+     * Writes to a unique temporary file in the same directory and then atomically moves it into place so anything
+     * watching, reading, or concurrently writing the file never sees a partial write
+     */
+    static void writeAtomic(File file, ByteBuffer buffer) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(),file.getName(),".tmp");
+        try {
+            try(FileChannel channel = FileChannel.open(temp,WRITE)) {
+                while(buffer.hasRemaining()) channel.write(buffer);
+            }
+            copyPermissions(target,temp);
+            Files.move(temp,target,REPLACE_EXISTING,ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    public static void writeToFile(String path, String extension, byte[] bytes) {
+        try {
             LOGGER.info("Writing bytes to file {}",path);
-            stream.write(bytes);
+            writeAtomic(getFile(path+extension,false),ByteBuffer.wrap(bytes));
         } catch(IOException ex) {
             LOGGER.error("Failed to write bytes to {}",path,ex);
         }